@@ -12,8 +12,14 @@ import android.util.AttributeSet;
 import android.view.View;
 import android.view.ViewTreeObserver;
 
+import com.csvlt.android.simplespectrumanalyser.audio.MfccExtractor;
+import com.csvlt.android.simplespectrumanalyser.audio.NoiseFloorEstimator;
+import com.csvlt.android.simplespectrumanalyser.audio.PitchDetector;
+import com.csvlt.android.simplespectrumanalyser.audio.QualityGovernor;
 import com.csvlt.android.simplespectrumanalyser.audio.Recorder;
 import com.csvlt.android.simplespectrumanalyser.audio.SimpleRecorder;
+import com.csvlt.android.simplespectrumanalyser.audio.SpectrumAnalyser;
+import com.csvlt.android.simplespectrumanalyser.utils.MinMaxDecimator;
 
 import java.util.Random;
 
@@ -23,18 +29,40 @@ import java.util.Random;
 public class AmplitudeView extends View {
 
     static final String TAG = "AmplitudeView";
-    static final int INTERVAL = 50;
-    static final int MAX_DATA_POINTS = 500;
+    static final int HISTORY_LENGTH = 2000;
     static final int CURSOR_COLOUR = Color.GREEN;
+    // Darkens the part of each bar the column's values moved through
+    static final int SPAN_COLOUR = Color.argb(96, 0, 0, 0);
+    static final int MEL_BAND_COUNT = 26;
+    static final int MFCC_COUNT = 13;
+    static final int PITCH_WINDOW_SIZE = 2048;
+    static final float PITCH_CONFIDENCE_THRESHOLD = 0.8f;
+    // Time each amplitude noise floor sub-window covers, so the floor adapts at the same pace
+    // whatever the frame interval
+    static final int AMPLITUDE_NOISE_SUB_WINDOW_TIME = 800;
+    static final int PITCH_TEXT_COLOUR = Color.WHITE;
+    static final float PITCH_TEXT_SIZE = 48f;
 
     private Recorder mAudioRecord;
+    private SpectrumAnalyser mSpectrumAnalyser;
+    private MfccExtractor mFeatureExtractor;
+    private PitchDetector mPitchDetector;
+    private NoiseFloorEstimator mSpectrumNoiseFloor;
+    private NoiseFloorEstimator mAmplitudeNoiseFloor;
+    private float[] mAmplitudeValue = new float[1];
+    private QualityGovernor mGovernor;
+    private int mInterval;
 
     private Random mRandom;
-    private int mPos;
     Handler mHandler;
     Runnable mRunnable;
     private Paint mPaint;
-    private int[] mAmplitudes = new int[MAX_DATA_POINTS];
+    private Paint mTextPaint;
+    private int mPitchTextValue = -1;
+    private String mPitchText;
+    private MinMaxDecimator mDecimator;
+    private float[] mBars;
+    private float[] mSpans;
     private Shader mShader;
 
     private Normaliser mNormaliser;
@@ -58,15 +86,43 @@ public class AmplitudeView extends View {
 
     private void init() {
         mRandom = new Random();
-        mPos = 0;
         mPaint = new Paint();
         mPaint.setAntiAlias(true);
+        mTextPaint = new Paint();
+        mTextPaint.setAntiAlias(true);
+        mTextPaint.setColor(PITCH_TEXT_COLOUR);
+        mTextPaint.setTextSize(PITCH_TEXT_SIZE);
 
         // Initialise audio record settings
         mNormaliser = new Normaliser();
 
         // TODO: Use dependency injection rather than creating this here.
         mAudioRecord = new SimpleRecorder();
+        mGovernor = new QualityGovernor.Builder().build();
+        QualityGovernor.Level level = mGovernor.getLevel();
+        mSpectrumAnalyser = new SpectrumAnalyser(level.fftSize, level.hopSize);
+        mFeatureExtractor = new MfccExtractor(MEL_BAND_COUNT, MFCC_COUNT);
+        mSpectrumAnalyser.addListener(mFeatureExtractor);
+        mSpectrumAnalyser.setProcessingListener(mGovernor);
+        mSpectrumNoiseFloor = new NoiseFloorEstimator();
+        mSpectrumAnalyser.setNoiseFloorEstimator(mSpectrumNoiseFloor);
+        mAmplitudeNoiseFloor = new NoiseFloorEstimator();
+        mAudioRecord.addListener(mSpectrumAnalyser);
+        mPitchDetector = new PitchDetector(PITCH_WINDOW_SIZE, level.pitchHopSize);
+        mPitchDetector.setProcessingListener(mGovernor);
+        mAudioRecord.addListener(mPitchDetector);
+        int maxInterval = 0;
+        for (QualityGovernor.Level qualityLevel : mGovernor.getLevels()) {
+            maxInterval = Math.max(maxInterval, qualityLevel.frameInterval);
+        }
+        mAudioRecord.setMaxReadSize(getReadSize(maxInterval));
+        applyQualityLevel(level);
+        mGovernor.setListener(new QualityGovernor.Listener() {
+            @Override
+            public void onLevelChanged(QualityGovernor.Level level) {
+                applyQualityLevel(level);
+            }
+        });
         startAudioRecord();
 
         // Set up values that require the view to have been measured (i.e. require height and width values)
@@ -75,13 +131,9 @@ public class AmplitudeView extends View {
             public boolean onPreDraw() {
                 try {
                     int viewHeight = AmplitudeView.this.getHeight();
-                    int viewWidth = AmplitudeView.this.getWidth();
                     if (mNormaliser.height == 0) {
                         mNormaliser.height = viewHeight;
                     }
-                    if (mBandSize == 0) {
-                        mBandSize = viewWidth / (float) MAX_DATA_POINTS;
-                    }
                     if (mShader == null) {
                         int[] gradientColours = new int[] {Color.RED, Color.YELLOW, Color.GREEN };
                         mShader = new LinearGradient(0, 0, 0, mNormaliser.height, gradientColours, null, Shader.TileMode.MIRROR);
@@ -101,14 +153,63 @@ public class AmplitudeView extends View {
                 if (mAudioRecord != null) {
                     mAudioRecord.read();
                 }
+                addAmplitude();
                 invalidate();
-                mHandler.postDelayed(this, INTERVAL);
-                mPos += 1;
-                mPos %= MAX_DATA_POINTS;
+                mGovernor.evaluate(System.nanoTime());
+                mHandler.postDelayed(this, mInterval);
             }
         };
     }
 
+    /**
+     * Gets the MFCC feature stream computed alongside the spectrum, for downstream consumers to
+     * subscribe to.
+     * @return the feature extractor.
+     */
+    public MfccExtractor getFeatureExtractor() {
+        return mFeatureExtractor;
+    }
+
+    /**
+     * Gets the pitch detector reading from the same capture stream as the spectrum.
+     * @return the pitch detector.
+     */
+    public PitchDetector getPitchDetector() {
+        return mPitchDetector;
+    }
+
+    /**
+     * Gets the spectrum stage, for display or peak detection to subscribe to its denoised output.
+     * @return the spectrum analyser.
+     */
+    public SpectrumAnalyser getSpectrumAnalyser() {
+        return mSpectrumAnalyser;
+    }
+
+    /**
+     * Gets the per-bin noise floor for the spectrum, which is tracked while the analyser has
+     * denoised listeners. Set its mode to subtract or gate the floor from the spectrum given to
+     * them; the MFCC features always use the raw spectrum.
+     * @return the spectrum noise floor estimator.
+     */
+    public NoiseFloorEstimator getSpectrumNoiseFloor() {
+        return mSpectrumNoiseFloor;
+    }
+
+    private void applyQualityLevel(QualityGovernor.Level level) {
+        mSpectrumAnalyser.configure(level.fftSize, level.hopSize);
+        mPitchDetector.setHopSize(level.pitchHopSize);
+        mInterval = level.frameInterval;
+        // The amplitude floor is updated once per frame
+        mAmplitudeNoiseFloor.setSubWindowLength(Math.max(AMPLITUDE_NOISE_SUB_WINDOW_TIME / mInterval, 1));
+        mAudioRecord.setReadSize(getReadSize(mInterval));
+    }
+
+    // Read as many samples as arrive between frames so capture keeps pace with the render rate
+    private int getReadSize(int frameInterval) {
+        return mAudioRecord.getSampleRate() * frameInterval / 1000;
+    }
+
     private void startAudioRecord() {
         if (mAudioRecord != null) {
             mAudioRecord.start();
@@ -132,38 +233,101 @@ public class AmplitudeView extends View {
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         startAudioRecord();
-        mHandler.postDelayed(mRunnable, INTERVAL);
+        mHandler.postDelayed(mRunnable, mInterval);
+    }
+
+    private void addAmplitude() {
+        if (mDecimator == null) {
+            return;
+        }
+        int amplitude = 0; //mRandom.nextInt(getHeight());
+        if (mAudioRecord != null) {
+            amplitude = mAudioRecord.getMeanAmplitude();
+        }
+
+        // Scale against the signal above the stationary background rather than the raw level
+        mAmplitudeValue[0] = amplitude;
+        mAmplitudeNoiseFloor.process(mAmplitudeValue);
+        mNormaliser.floor = (int) mAmplitudeNoiseFloor.getNoise(0);
+        mDecimator.add(mNormaliser.normalise(amplitude));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w != oldw) {
+            createDecimator(w);
+        }
+    }
+
+    private void createDecimator(int width) {
+        if (width == 0) {
+            return;
+        }
+
+        // One column per pixel at most, so drawing scales with the width rather than the history
+        mDecimator = new MinMaxDecimator(HISTORY_LENGTH, width);
+        mBandSize = width / (float) mDecimator.getColumnCount();
+        mBars = new float[mDecimator.getColumnCount() * 4];
+        mSpans = new float[mDecimator.getColumnCount() * 4];
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
+        long start = System.nanoTime();
         super.onDraw(canvas);
 
         canvas.getClipBounds(mClipBounds);
 
-        if (!mClipBounds.isEmpty()) {
-            int amplitude = 0; //mRandom.nextInt(canvas.getHeight());
-            if (mAudioRecord != null) {
-                amplitude = mAudioRecord.getMeanAmplitude();
+        if (!mClipBounds.isEmpty() && mDecimator != null) {
+            // Draw each column as a bar up to its max, then its min to max span over the top, as
+            // one batched set of lines each
+            int columns = mDecimator.getColumnCount();
+            for (int i=0; i<columns; i++) {
+                float x = i* mBandSize + mBandSize / 2;
+                float top = mNormaliser.height - mDecimator.getMax(i);
+                float bottom = mNormaliser.height - mDecimator.getMin(i);
+                mBars[i*4] = x;
+                mBars[i*4 + 1] = mNormaliser.height;
+                mBars[i*4 + 2] = x;
+                mBars[i*4 + 3] = top;
+                mSpans[i*4] = x;
+                mSpans[i*4 + 1] = bottom;
+                mSpans[i*4 + 2] = x;
+                mSpans[i*4 + 3] = top;
             }
-            int normalisedAmplitude = mNormaliser.normalise(amplitude);
-            mAmplitudes[mPos] = normalisedAmplitude;
-
             mPaint.setShader(mShader);
-            for (int i=0; i<MAX_DATA_POINTS; i++) {
-                canvas.drawRect(i* mBandSize, mNormaliser.height-mAmplitudes[i], i* mBandSize + mBandSize, mNormaliser.height, mPaint);
-            }
+            mPaint.setStrokeWidth(mBandSize);
+            canvas.drawLines(mBars, mPaint);
+            mPaint.setShader(null);
+            mPaint.setColor(SPAN_COLOUR);
+            canvas.drawLines(mSpans, mPaint);
 
             // draw cursor line
             mPaint.setColor(CURSOR_COLOUR);
-            float cursorPos = mPos* mBandSize + mBandSize;
+            mPaint.setStrokeWidth(0);
+            float cursorPos = mDecimator.getCurrentColumn()* mBandSize + mBandSize;
             canvas.drawLine(cursorPos, 0, cursorPos, mNormaliser.height, mPaint);
+
+            // draw tuner readout
+            PitchDetector.Estimate pitch = mPitchDetector.getEstimate();
+            if (pitch.confidence >= PITCH_CONFIDENCE_THRESHOLD) {
+                int pitchValue = Math.round(pitch.frequency);
+                if (pitchValue != mPitchTextValue) {
+                    mPitchTextValue = pitchValue;
+                    mPitchText = pitchValue + " Hz";
+                }
+                canvas.drawText(mPitchText, PITCH_TEXT_SIZE / 2, PITCH_TEXT_SIZE * 1.5f, mTextPaint);
+            }
         }
+
+        mGovernor.recordFrameTime(System.nanoTime() - start);
     }
 
     private static class Normaliser {
 
         int height;
+        int floor;
         private int mMaxValue;
 
         private void setMaxValue(int value) {
@@ -173,6 +337,7 @@ public class AmplitudeView extends View {
         }
 
         public int normalise(int value) {
+            value = Math.max(value - floor, 0);
             setMaxValue(value);
             float norm = (value * height * (1 / (float) mMaxValue));
             return mMaxValue != 0 ? (int) norm : 0;
@@ -0,0 +1,99 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+/**
+ * In-place radix-2 fast Fourier transform with precomputed twiddle and bit-reversal tables.
+ */
+public class FFT {
+
+    private final int mSize;
+    private final float[] mCos;
+    private final float[] mSin;
+    private final int[] mReverse;
+
+    /**
+     * @param size the transform size.
+     * @throws IllegalArgumentException if size is not a power of two.
+     */
+    public FFT(int size) {
+        if (size < 2 || (size & (size - 1)) != 0) {
+            throw new IllegalArgumentException("size must be a power of two");
+        }
+        mSize = size;
+        mCos = new float[size / 2];
+        mSin = new float[size / 2];
+        for (int i = 0; i < size / 2; i++) {
+            double angle = 2 * Math.PI * i / size;
+            mCos[i] = (float) Math.cos(angle);
+            mSin[i] = (float) Math.sin(angle);
+        }
+
+        int bits = Integer.numberOfTrailingZeros(size);
+        mReverse = new int[size];
+        for (int i = 0; i < size; i++) {
+            mReverse[i] = Integer.reverse(i) >>> (32 - bits);
+        }
+    }
+
+    /**
+     * Gets the transform size.
+     * @return the size.
+     */
+    public int getSize() {
+        return mSize;
+    }
+
+    /**
+     * Forward transform of the first size values of re and im, in place.
+     * @param re the real parts.
+     * @param im the imaginary parts.
+     */
+    public void forward(float[] re, float[] im) {
+        for (int i = 0; i < mSize; i++) {
+            int j = mReverse[i];
+            if (j > i) {
+                float t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+
+        for (int length = 2; length <= mSize; length <<= 1) {
+            int half = length >> 1;
+            int step = mSize / length;
+            for (int start = 0; start < mSize; start += length) {
+                for (int j = 0; j < half; j++) {
+                    int k = j * step;
+                    int a = start + j;
+                    int b = a + half;
+                    float tRe = re[b] * mCos[k] + im[b] * mSin[k];
+                    float tIm = im[b] * mCos[k] - re[b] * mSin[k];
+                    re[b] = re[a] - tRe;
+                    im[b] = im[a] - tIm;
+                    re[a] += tRe;
+                    im[a] += tIm;
+                }
+            }
+        }
+    }
+
+    /**
+     * Inverse transform of the first size values of re and im, in place, including the 1/size
+     * scaling.
+     * @param re the real parts.
+     * @param im the imaginary parts.
+     */
+    public void inverse(float[] re, float[] im) {
+        for (int i = 0; i < mSize; i++) {
+            im[i] = -im[i];
+        }
+        forward(re, im);
+        float scale = 1f / mSize;
+        for (int i = 0; i < mSize; i++) {
+            re[i] *= scale;
+            im[i] = -im[i] * scale;
+        }
+    }
+}
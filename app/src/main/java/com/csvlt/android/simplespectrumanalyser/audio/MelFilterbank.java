@@ -0,0 +1,123 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+/**
+ * Triangular mel-spaced filterbank over a power spectrum.
+ *
+ * Each band only stores the weights of the bins it overlaps, so applying the filterbank costs one
+ * multiply per non-zero weight rather than one per band per bin.
+ */
+public class MelFilterbank {
+
+    private final int mFftSize;
+    private final int mSampleRate;
+    private final int mBandCount;
+    private final int[] mStart;
+    private final int[] mOffset;
+    private final int[] mLength;
+    private final float[] mWeights;
+
+    /**
+     * @param fftSize the transform size the spectrum was produced with.
+     * @param sampleRate the sample rate of the spectrum.
+     * @param bandCount the number of mel bands.
+     * @param minFrequency the lower edge of the first band in Hz.
+     * @param maxFrequency the upper edge of the last band in Hz, clamped to the Nyquist frequency.
+     * @throws IllegalArgumentException if bandCount is less than 1 or the frequency range is empty.
+     */
+    public MelFilterbank(int fftSize, int sampleRate, int bandCount, float minFrequency, float maxFrequency) {
+        maxFrequency = Math.min(maxFrequency, sampleRate / 2f);
+        if (bandCount < 1) {
+            throw new IllegalArgumentException("bandCount must be at least 1");
+        }
+        if (minFrequency < 0 || minFrequency >= maxFrequency) {
+            throw new IllegalArgumentException("minFrequency must be between 0 and maxFrequency");
+        }
+        mFftSize = fftSize;
+        mSampleRate = sampleRate;
+        mBandCount = bandCount;
+        mStart = new int[bandCount];
+        mOffset = new int[bandCount];
+        mLength = new int[bandCount];
+
+        // Band edges are evenly spaced in mel, then mapped onto fractional bin positions
+        double minMel = toMel(minFrequency);
+        double maxMel = toMel(maxFrequency);
+        double[] edges = new double[bandCount + 2];
+        for (int i = 0; i < edges.length; i++) {
+            double mel = minMel + (maxMel - minMel) * i / (bandCount + 1);
+            edges[i] = fromMel(mel) * fftSize / sampleRate;
+        }
+
+        int lastBin = fftSize / 2;
+        int total = 0;
+        for (int b = 0; b < bandCount; b++) {
+            int first = (int) Math.ceil(edges[b]);
+            int last = Math.min((int) Math.floor(edges[b + 2]), lastBin);
+            if (last < first) {
+                // Narrow low bands can fall between bins, so give them the nearest one
+                first = Math.min((int) Math.round(edges[b + 1]), lastBin);
+                last = first;
+            }
+            mStart[b] = first;
+            mOffset[b] = total;
+            mLength[b] = last - first + 1;
+            total += mLength[b];
+        }
+
+        mWeights = new float[total];
+        for (int b = 0; b < bandCount; b++) {
+            double lower = edges[b];
+            double centre = edges[b + 1];
+            double upper = edges[b + 2];
+            for (int i = 0; i < mLength[b]; i++) {
+                int bin = mStart[b] + i;
+                double weight;
+                if (mLength[b] == 1) {
+                    weight = 1;
+                } else if (bin <= centre) {
+                    weight = (bin - lower) / (centre - lower);
+                } else {
+                    weight = (upper - bin) / (upper - centre);
+                }
+                mWeights[mOffset[b] + i] = (float) Math.max(weight, 0);
+            }
+        }
+    }
+
+    public int getFftSize() {
+        return mFftSize;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    /**
+     * Sums the power spectrum into each band.
+     * @param power the power spectrum, fftSize / 2 + 1 bins.
+     * @param energies receives one energy per band.
+     */
+    public void apply(float[] power, float[] energies) {
+        for (int b = 0; b < mBandCount; b++) {
+            int start = mStart[b];
+            int offset = mOffset[b];
+            float sum = 0;
+            for (int i = 0; i < mLength[b]; i++) {
+                sum += power[start + i] * mWeights[offset + i];
+            }
+            energies[b] = sum;
+        }
+    }
+
+    static double toMel(double frequency) {
+        return 2595 * Math.log10(1 + frequency / 700);
+    }
+
+    static double fromMel(double mel) {
+        return 700 * (Math.pow(10, mel / 2595) - 1);
+    }
+}
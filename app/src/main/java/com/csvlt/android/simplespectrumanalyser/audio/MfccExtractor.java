@@ -0,0 +1,156 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Produces mel-frequency cepstral coefficients from each spectrum the analyser publishes, so
+ * features come out of the same pass as the spectrum.
+ *
+ * The band count is fixed so every set of coefficients has the same layout. The filterbank is
+ * rebuilt only when the fft size or sample rate changes, and each listener is told the format it
+ * is getting before its first features and whenever it changes; the DCT table and output buffers
+ * are allocated once. No work is done while nothing is listening.
+ */
+public class MfccExtractor implements SpectrumAnalyser.Listener {
+
+    /**
+     * Receives the coefficients once per hop. Called on the read thread; the array is reused
+     * between calls so it must not be held on to.
+     */
+    public interface Listener {
+        void onFeatures(float[] coefficients);
+
+        /**
+         * Called before the listener's first features, including for listeners added while the
+         * extractor is running, and again whenever the spectrum's fft size or sample rate changes,
+         * since that changes the frequency resolution behind the bands.
+         */
+        void onFormatChanged(int fftSize, int sampleRate);
+    }
+
+    public static final float DEFAULT_MIN_FREQUENCY = 20f;
+    public static final float DEFAULT_MAX_FREQUENCY = 8000f;
+
+    // Keeps silent bands finite after the log
+    private static final float LOG_FLOOR = 1e-10f;
+
+    // Remembers the format each listener was last told about
+    private static class Subscriber {
+        final Listener listener;
+        int fftSize;
+        int sampleRate;
+
+        Subscriber(Listener listener) {
+            this.listener = listener;
+        }
+    }
+
+    private final List<Subscriber> mSubscribers = new CopyOnWriteArrayList<Subscriber>();
+
+    private final int mCoefficientCount;
+    private final float mMinFrequency;
+    private final float mMaxFrequency;
+    private final int mBandCount;
+    private final float[] mDct;
+    private final float[] mEnergies;
+    private final float[] mCoefficients;
+    private MelFilterbank mFilterbank;
+
+    public MfccExtractor(int bandCount, int coefficientCount) {
+        this(bandCount, coefficientCount, DEFAULT_MIN_FREQUENCY, DEFAULT_MAX_FREQUENCY);
+    }
+
+    /**
+     * @param bandCount the number of mel bands.
+     * @param coefficientCount the number of coefficients to keep.
+     * @param minFrequency the lower edge of the filterbank in Hz.
+     * @param maxFrequency the upper edge of the filterbank in Hz.
+     * @throws IllegalArgumentException if coefficientCount is not between 1 and bandCount.
+     */
+    public MfccExtractor(int bandCount, int coefficientCount, float minFrequency, float maxFrequency) {
+        if (coefficientCount < 1 || coefficientCount > bandCount) {
+            throw new IllegalArgumentException("coefficientCount must be between 1 and bandCount");
+        }
+        mBandCount = bandCount;
+        mCoefficientCount = coefficientCount;
+        mMinFrequency = minFrequency;
+        mMaxFrequency = maxFrequency;
+        mEnergies = new float[bandCount];
+        mCoefficients = new float[coefficientCount];
+
+        // Orthonormal DCT-II
+        mDct = new float[coefficientCount * bandCount];
+        for (int k = 0; k < coefficientCount; k++) {
+            double scale = Math.sqrt((k == 0 ? 1.0 : 2.0) / bandCount);
+            for (int b = 0; b < bandCount; b++) {
+                mDct[k * bandCount + b] = (float) (scale * Math.cos(Math.PI * k * (b + 0.5) / bandCount));
+            }
+        }
+    }
+
+    public int getBandCount() {
+        return mBandCount;
+    }
+
+    public void addListener(Listener listener) {
+        mSubscribers.add(new Subscriber(listener));
+    }
+
+    public void removeListener(Listener listener) {
+        for (Subscriber subscriber : mSubscribers) {
+            if (subscriber.listener == listener) {
+                mSubscribers.remove(subscriber);
+            }
+        }
+    }
+
+    public int getCoefficientCount() {
+        return mCoefficientCount;
+    }
+
+    @Override
+    public void onSpectrum(float[] power, int sampleRate) {
+        if (mSubscribers.isEmpty()) {
+            return;
+        }
+        float[] coefficients = extract(power, sampleRate);
+        int fftSize = (power.length - 1) * 2;
+        for (Subscriber subscriber : mSubscribers) {
+            if (subscriber.fftSize != fftSize || subscriber.sampleRate != sampleRate) {
+                subscriber.fftSize = fftSize;
+                subscriber.sampleRate = sampleRate;
+                subscriber.listener.onFormatChanged(fftSize, sampleRate);
+            }
+            subscriber.listener.onFeatures(coefficients);
+        }
+    }
+
+    /**
+     * Computes the coefficients for a single power spectrum.
+     * @param power the power spectrum, fftSize / 2 + 1 bins.
+     * @param sampleRate the sample rate of the spectrum.
+     * @return the coefficients; the array is reused between calls.
+     */
+    public synchronized float[] extract(float[] power, int sampleRate) {
+        int fftSize = (power.length - 1) * 2;
+        if (mFilterbank == null || mFilterbank.getFftSize() != fftSize || mFilterbank.getSampleRate() != sampleRate) {
+            mFilterbank = new MelFilterbank(fftSize, sampleRate, mBandCount, mMinFrequency, mMaxFrequency);
+        }
+
+        mFilterbank.apply(power, mEnergies);
+        for (int b = 0; b < mBandCount; b++) {
+            mEnergies[b] = (float) Math.log(mEnergies[b] + LOG_FLOOR);
+        }
+
+        for (int k = 0; k < mCoefficientCount; k++) {
+            int row = k * mBandCount;
+            float sum = 0;
+            for (int b = 0; b < mBandCount; b++) {
+                sum += mEnergies[b] * mDct[row + b];
+            }
+            mCoefficients[k] = sum;
+        }
+        return mCoefficients;
+    }
+}
@@ -0,0 +1,196 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import java.util.Arrays;
+
+/**
+ * Tracks a per-bin noise floor using minimum statistics, and optionally removes it.
+ *
+ * Each bin's power is smoothed over time and the floor is the minimum of the smoothed power over
+ * a sliding window, scaled up by a bias factor since a minimum underestimates the mean. The
+ * window is split into sub-windows whose minima are kept in a ring, so each update is O(1) per
+ * bin and the ring is only re-scanned when a sub-window completes. The bin count follows the
+ * input, so the same estimator works for a spectrum or for a single level.
+ */
+public class NoiseFloorEstimator {
+
+    /** Only track the floor; values are left unchanged. */
+    public static final int MODE_TRACK = 0;
+    /** Subtract the floor from each bin, clamping at zero. */
+    public static final int MODE_SUBTRACT = 1;
+    /** Zero bins that are not far enough above the floor. */
+    public static final int MODE_GATE = 2;
+
+    public static final int DEFAULT_SUB_WINDOW_LENGTH = 16;
+    public static final int DEFAULT_SUB_WINDOW_COUNT = 8;
+    public static final float DEFAULT_SMOOTHING = 0.8f;
+    public static final float DEFAULT_BIAS = 1.5f;
+    public static final float DEFAULT_GATE_RATIO = 2f;
+
+    private int mSubWindowLength;
+    private final int mSubWindowCount;
+    private final float mSmoothing;
+    private final float mBias;
+    private volatile int mMode = MODE_TRACK;
+    private volatile float mGateRatio = DEFAULT_GATE_RATIO;
+
+    private int mBinCount;
+    private float[] mSmoothed;
+    private float[] mSubWindowMin;
+    private float[] mWindowMins;
+    private float[] mRingMin;
+    private float[] mNoise;
+    private int mSubWindowFill;
+    private int mSubWindowIndex;
+    private boolean mStarted;
+
+    public NoiseFloorEstimator() {
+        this(DEFAULT_SUB_WINDOW_LENGTH, DEFAULT_SUB_WINDOW_COUNT, DEFAULT_SMOOTHING, DEFAULT_BIAS);
+    }
+
+    /**
+     * @param subWindowLength the number of updates per sub-window.
+     * @param subWindowCount the number of sub-windows the minimum is taken over.
+     * @param smoothing how much of the previous smoothed power to keep each update, from 0 to 1.
+     * @param bias the factor the minimum is scaled by to give the floor.
+     * @throws IllegalArgumentException if a length or count is less than 1 or smoothing is not
+     * between 0 and 1.
+     */
+    public NoiseFloorEstimator(int subWindowLength, int subWindowCount, float smoothing, float bias) {
+        if (subWindowLength < 1 || subWindowCount < 1) {
+            throw new IllegalArgumentException("subWindowLength and subWindowCount must be at least 1");
+        }
+        if (smoothing < 0 || smoothing >= 1) {
+            throw new IllegalArgumentException("smoothing must be between 0 and 1");
+        }
+        mSubWindowLength = subWindowLength;
+        mSubWindowCount = subWindowCount;
+        mSmoothing = smoothing;
+        mBias = bias;
+    }
+
+    /**
+     * Changes the number of updates per sub-window, e.g. to keep the window the same length in
+     * time when the update rate changes. The current sub-window completes at the new length; the
+     * floor tracked so far is kept.
+     * @param subWindowLength the number of updates per sub-window.
+     * @throws IllegalArgumentException if the length is less than 1.
+     */
+    public synchronized void setSubWindowLength(int subWindowLength) {
+        if (subWindowLength < 1) {
+            throw new IllegalArgumentException("subWindowLength must be at least 1");
+        }
+        mSubWindowLength = subWindowLength;
+    }
+
+    /**
+     * Sets what process does to values after updating the floor.
+     * @param mode one of MODE_TRACK, MODE_SUBTRACT or MODE_GATE.
+     * @throws IllegalArgumentException if the mode is not recognised.
+     */
+    public void setMode(int mode) {
+        if (mode != MODE_TRACK && mode != MODE_SUBTRACT && mode != MODE_GATE) {
+            throw new IllegalArgumentException("unknown mode");
+        }
+        mMode = mode;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    /**
+     * Sets how far above the floor a bin must be to pass the gate.
+     * @param ratio the ratio of bin value to floor.
+     */
+    public void setGateRatio(float ratio) {
+        mGateRatio = ratio;
+    }
+
+    /**
+     * Updates the floor with the next set of values, then subtracts or gates them in place
+     * according to the mode.
+     * @param values one value per bin; modified in place unless the mode is MODE_TRACK.
+     */
+    public synchronized void process(float[] values) {
+        update(values);
+        int mode = mMode;
+        if (mode == MODE_SUBTRACT) {
+            for (int b = 0; b < mBinCount; b++) {
+                values[b] = Math.max(values[b] - mNoise[b], 0);
+            }
+        } else if (mode == MODE_GATE) {
+            float ratio = mGateRatio;
+            for (int b = 0; b < mBinCount; b++) {
+                if (values[b] < mNoise[b] * ratio) {
+                    values[b] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the current floor for a bin.
+     * @param bin the bin index.
+     * @return the floor, or 0 before any values have been seen.
+     */
+    public synchronized float getNoise(int bin) {
+        return bin < mBinCount ? mNoise[bin] : 0;
+    }
+
+    /**
+     * Gets the number of bins currently being tracked.
+     * @return the bin count.
+     */
+    public synchronized int getBinCount() {
+        return mBinCount;
+    }
+
+    private void update(float[] values) {
+        if (values.length != mBinCount) {
+            reset(values.length);
+        }
+
+        boolean subWindowDone = ++mSubWindowFill >= mSubWindowLength;
+        for (int b = 0; b < mBinCount; b++) {
+            float smoothed = mStarted ? mSmoothing * mSmoothed[b] + (1 - mSmoothing) * values[b] : values[b];
+            mSmoothed[b] = smoothed;
+            if (smoothed < mSubWindowMin[b]) {
+                mSubWindowMin[b] = smoothed;
+            }
+            mNoise[b] = Math.min(mRingMin[b], mSubWindowMin[b]) * mBias;
+
+            if (subWindowDone) {
+                // Replace the oldest sub-window and re-take the minimum over the ring
+                int row = b * mSubWindowCount;
+                mWindowMins[row + mSubWindowIndex] = mSubWindowMin[b];
+                float min = Float.MAX_VALUE;
+                for (int i = 0; i < mSubWindowCount; i++) {
+                    min = Math.min(min, mWindowMins[row + i]);
+                }
+                mRingMin[b] = min;
+                mSubWindowMin[b] = Float.MAX_VALUE;
+            }
+        }
+        mStarted = true;
+
+        if (subWindowDone) {
+            mSubWindowFill = 0;
+            mSubWindowIndex = (mSubWindowIndex + 1) % mSubWindowCount;
+        }
+    }
+
+    private void reset(int binCount) {
+        mBinCount = binCount;
+        mSmoothed = new float[binCount];
+        mSubWindowMin = new float[binCount];
+        mWindowMins = new float[binCount * mSubWindowCount];
+        mRingMin = new float[binCount];
+        mNoise = new float[binCount];
+        Arrays.fill(mSubWindowMin, Float.MAX_VALUE);
+        Arrays.fill(mWindowMins, Float.MAX_VALUE);
+        Arrays.fill(mRingMin, Float.MAX_VALUE);
+        mSubWindowFill = 0;
+        mSubWindowIndex = 0;
+        mStarted = false;
+    }
+}
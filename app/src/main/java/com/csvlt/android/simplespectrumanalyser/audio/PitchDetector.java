@@ -0,0 +1,265 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Estimates the fundamental frequency of the captured sample stream using the McLeod pitch method.
+ *
+ * The normalised square difference function is built from the autocorrelation, which is computed
+ * with a zero-padded FFT so each frame costs O(N log N) rather than O(N^2). The first key maximum
+ * close to the highest one gives the period, and its height gives the confidence. All work
+ * buffers are allocated up front.
+ */
+public class PitchDetector implements Recorder.Listener {
+
+    /**
+     * Receives the estimated pitch once per hop. Called on the read thread.
+     */
+    public interface Listener {
+        /**
+         * @param frequency the fundamental frequency in Hz, or 0 if none was found.
+         * @param confidence how periodic the frame was, from 0 to 1.
+         */
+        void onPitch(float frequency, float confidence);
+    }
+
+    /**
+     * A pitch estimate and its confidence from the same frame.
+     */
+    public static class Estimate {
+        /** The fundamental frequency in Hz, or 0 if none was found. */
+        public final float frequency;
+        /** How periodic the frame was, from 0 to 1. */
+        public final float confidence;
+
+        public Estimate(float frequency, float confidence) {
+            this.frequency = frequency;
+            this.confidence = confidence;
+        }
+    }
+
+    public static final Estimate NONE = new Estimate(0, 0);
+
+    // Fraction of the highest key maximum that the chosen maximum must reach
+    static final float PEAK_THRESHOLD = 0.9f;
+    // Frames quieter than this, in squared full-scale units, are treated as silence
+    static final float SILENCE_ENERGY = 1e-6f;
+
+    private static final float SAMPLE_SCALE = 1f / 32768f;
+
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+    private volatile ProcessingListener mProcessingListener;
+
+    private final int mWindowSize;
+    private final int mMaxLag;
+    private final FFT mFft;
+    private final float[] mFrame;
+    private final float[] mSamples;
+    private final float[] mRe;
+    private final float[] mIm;
+    private final float[] mNsdf;
+    private final int[] mPeaks;
+    private volatile int mRequestedHopSize;
+    private int mHopSize;
+    private int mWritePos;
+    private int mSinceHop;
+
+    private float mFrequency;
+    private float mConfidence;
+    private volatile Estimate mEstimate = NONE;
+
+    /**
+     * @param windowSize the number of samples analysed per frame, a power of two.
+     * @param hopSize the number of new samples between estimates.
+     * @throws IllegalArgumentException if windowSize is not a power of two or hopSize is not
+     * between 1 and windowSize.
+     */
+    public PitchDetector(int windowSize, int hopSize) {
+        if (hopSize < 1 || hopSize > windowSize) {
+            throw new IllegalArgumentException("hopSize must be between 1 and windowSize");
+        }
+        // Zero padding to twice the window stops the circular correlation wrapping around
+        mFft = new FFT(windowSize * 2);
+        mWindowSize = windowSize;
+        mHopSize = hopSize;
+        mRequestedHopSize = hopSize;
+        mMaxLag = windowSize / 2;
+        mFrame = new float[windowSize];
+        mSamples = new float[windowSize];
+        mRe = new float[windowSize * 2];
+        mIm = new float[windowSize * 2];
+        mNsdf = new float[mMaxLag];
+        mPeaks = new int[mMaxLag];
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Changes the number of new samples between estimates. Safe to call from any thread without
+     * waiting on the read thread; the change is applied before the next block of samples.
+     * @param hopSize the number of new samples between estimates.
+     * @throws IllegalArgumentException if hopSize is not between 1 and the window size.
+     */
+    public void setHopSize(int hopSize) {
+        if (hopSize < 1 || hopSize > mWindowSize) {
+            throw new IllegalArgumentException("hopSize must be between 1 and windowSize");
+        }
+        mRequestedHopSize = hopSize;
+    }
+
+    /**
+     * Sets a listener to be told how long each hop took, including the pitch listeners.
+     * @param listener the listener, or null to stop timing.
+     */
+    public void setProcessingListener(ProcessingListener listener) {
+        mProcessingListener = listener;
+    }
+
+    /**
+     * Gets the most recent pitch estimate. The frequency and confidence always come from the same
+     * frame.
+     * @return the estimate, or NONE before the first frame.
+     */
+    public Estimate getEstimate() {
+        return mEstimate;
+    }
+
+    @Override
+    public synchronized void onSamples(short[] samples, int count, int sampleRate) {
+        mHopSize = mRequestedHopSize;
+        for (int i = 0; i < count; i++) {
+            mFrame[mWritePos] = samples[i] * SAMPLE_SCALE;
+            mWritePos++;
+            if (mWritePos == mWindowSize) {
+                mWritePos = 0;
+            }
+            mSinceHop++;
+            if (mSinceHop >= mHopSize) {
+                mSinceHop = 0;
+                long start = System.nanoTime();
+                detect(sampleRate);
+                mEstimate = mConfidence > 0 ? new Estimate(mFrequency, mConfidence) : NONE;
+                for (Listener listener : mListeners) {
+                    listener.onPitch(mFrequency, mConfidence);
+                }
+                ProcessingListener processingListener = mProcessingListener;
+                if (processingListener != null) {
+                    processingListener.onProcessed(System.nanoTime() - start);
+                }
+            }
+        }
+    }
+
+    private void detect(int sampleRate) {
+        int tail = mWindowSize - mWritePos;
+        System.arraycopy(mFrame, mWritePos, mSamples, 0, tail);
+        System.arraycopy(mFrame, 0, mSamples, tail, mWritePos);
+
+        float energy = 0;
+        for (int i = 0; i < mWindowSize; i++) {
+            mRe[i] = mSamples[i];
+            mIm[i] = 0;
+            energy += mSamples[i] * mSamples[i];
+        }
+        if (energy < SILENCE_ENERGY) {
+            mFrequency = 0;
+            mConfidence = 0;
+            return;
+        }
+        for (int i = mWindowSize; i < mRe.length; i++) {
+            mRe[i] = 0;
+            mIm[i] = 0;
+        }
+
+        // Autocorrelation is the inverse transform of the power spectrum
+        mFft.forward(mRe, mIm);
+        for (int k = 0; k < mRe.length; k++) {
+            mRe[k] = mRe[k] * mRe[k] + mIm[k] * mIm[k];
+            mIm[k] = 0;
+        }
+        mFft.inverse(mRe, mIm);
+
+        // m(tau) drops the two samples that leave the overlap at each step
+        float m = 2 * energy;
+        for (int tau = 0; tau < mMaxLag; tau++) {
+            if (tau > 0) {
+                float leaving = mSamples[tau - 1];
+                float entering = mSamples[mWindowSize - tau];
+                m -= leaving * leaving + entering * entering;
+            }
+            mNsdf[tau] = m > 0 ? 2 * mRe[tau] / m : 0;
+        }
+
+        int peakCount = findKeyMaxima();
+        if (peakCount == 0) {
+            mFrequency = 0;
+            mConfidence = 0;
+            return;
+        }
+
+        float highest = 0;
+        for (int i = 0; i < peakCount; i++) {
+            highest = Math.max(highest, mNsdf[mPeaks[i]]);
+        }
+        int chosen = mPeaks[0];
+        for (int i = 0; i < peakCount; i++) {
+            if (mNsdf[mPeaks[i]] >= PEAK_THRESHOLD * highest) {
+                chosen = mPeaks[i];
+                break;
+            }
+        }
+
+        // Parabolic interpolation around the chosen maximum
+        float period = chosen;
+        float value = mNsdf[chosen];
+        if (chosen > 0 && chosen < mMaxLag - 1) {
+            float left = mNsdf[chosen - 1];
+            float right = mNsdf[chosen + 1];
+            float denominator = left - 2 * value + right;
+            if (denominator != 0) {
+                float shift = 0.5f * (left - right) / denominator;
+                period += shift;
+                value -= 0.25f * (left - right) * shift;
+            }
+        }
+
+        mFrequency = period > 0 ? sampleRate / period : 0;
+        mConfidence = Math.max(0, Math.min(1, value));
+    }
+
+    /**
+     * Finds the highest point of each positive region after the first negative-going zero
+     * crossing.
+     * @return the number of maxima written to mPeaks.
+     */
+    private int findKeyMaxima() {
+        int count = 0;
+        int tau = 1;
+        while (tau < mMaxLag && mNsdf[tau] > 0) {
+            tau++;
+        }
+
+        int best = -1;
+        for (; tau < mMaxLag - 1; tau++) {
+            if (mNsdf[tau] > 0) {
+                if (best < 0 || mNsdf[tau] > mNsdf[best]) {
+                    best = tau;
+                }
+            } else if (best >= 0) {
+                mPeaks[count++] = best;
+                best = -1;
+            }
+        }
+        if (best >= 0) {
+            mPeaks[count++] = best;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,8 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+/**
+ * Receives how long a processing stage spent on each unit of work.
+ */
+public interface ProcessingListener {
+    void onProcessed(long nanos);
+}
@@ -0,0 +1,225 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+/**
+ * Steps the analysis and rendering quality up or down to keep within a processing budget.
+ *
+ * Processing stages report how long each unit of work took and the view reports how long each
+ * frame took. Every evaluation period those times are compared against the elapsed wall time to
+ * give the fraction of a thread each is using. Being over budget for a couple of periods steps
+ * quality down; being well under budget for several periods steps it up. The gap between the two
+ * thresholds, and the longer wait before stepping up, stop it flipping between levels.
+ */
+public class QualityGovernor implements ProcessingListener {
+
+    public static class Builder {
+
+        private static final float DEFAULT_PROCESSING_BUDGET = 0.25f;
+        private static final float DEFAULT_FRAME_BUDGET = 0.5f;
+
+        private Level[] levels = DEFAULT_LEVELS;
+        private int initialLevel = DEFAULT_INITIAL_LEVEL;
+        private float processingBudget = DEFAULT_PROCESSING_BUDGET;
+        private float frameBudget = DEFAULT_FRAME_BUDGET;
+
+        public Builder() {}
+
+        /**
+         * @param qualityLevels the levels to choose between, lowest quality first.
+         */
+        public Builder levels(Level[] qualityLevels) {
+            levels = qualityLevels;
+            return this;
+        }
+
+        public Builder initialLevel(int level) {
+            initialLevel = level;
+            return this;
+        }
+
+        /**
+         * @param budget the fraction of real time the processing stages may use.
+         */
+        public Builder processingBudget(float budget) {
+            processingBudget = budget;
+            return this;
+        }
+
+        /**
+         * @param budget the fraction of the UI thread that drawing may use.
+         */
+        public Builder frameBudget(float budget) {
+            frameBudget = budget;
+            return this;
+        }
+
+        /**
+         * @throws IllegalArgumentException if there are no levels, the initial level is out of
+         * range or a budget is not greater than 0.
+         */
+        public QualityGovernor build() {
+            if (levels == null || levels.length == 0) {
+                throw new IllegalArgumentException("at least one level is required");
+            }
+            if (initialLevel < 0 || initialLevel >= levels.length) {
+                throw new IllegalArgumentException("initialLevel must be a valid level index");
+            }
+            if (processingBudget <= 0 || frameBudget <= 0) {
+                throw new IllegalArgumentException("budgets must be greater than 0");
+            }
+            return new QualityGovernor(this);
+        }
+    }
+
+    /**
+     * A set of analysis and rendering settings.
+     */
+    public static class Level {
+        public final int fftSize;
+        public final int hopSize;
+        public final int frameInterval;
+        public final int pitchHopSize;
+
+        /**
+         * @param fftSize the spectrum frame size.
+         * @param hopSize the number of new samples between spectra.
+         * @param frameInterval the time between rendered frames in milliseconds.
+         * @param pitchHopSize the number of new samples between pitch estimates.
+         */
+        public Level(int fftSize, int hopSize, int frameInterval, int pitchHopSize) {
+            this.fftSize = fftSize;
+            this.hopSize = hopSize;
+            this.frameInterval = frameInterval;
+            this.pitchHopSize = pitchHopSize;
+        }
+    }
+
+    public interface Listener {
+        void onLevelChanged(Level level);
+    }
+
+    public static final Level[] DEFAULT_LEVELS = new Level[] {
+            new Level(512, 512, 100, 2048),
+            new Level(1024, 1024, 66, 2048),
+            new Level(1024, 512, 50, 1024),
+            new Level(2048, 1024, 40, 1024),
+            new Level(2048, 512, 33, 512)
+    };
+    public static final int DEFAULT_INITIAL_LEVEL = 2;
+
+    static final long EVALUATION_PERIOD = 500000000L;
+    // Stepping up roughly doubles the cost, so only do it when comfortably below half the budget
+    static final float STEP_UP_FRACTION = 0.4f;
+    static final int STEP_DOWN_PERIODS = 2;
+    static final int STEP_UP_PERIODS = 6;
+
+    private final Level[] mLevels;
+    private final float mProcessingBudget;
+    private final float mFrameBudget;
+    private Listener mListener;
+
+    private int mLevel;
+    private long mProcessingNanos;
+    private long mFrameNanos;
+    private long mLastEvaluation;
+    private int mOverPeriods;
+    private int mUnderPeriods;
+
+    private QualityGovernor(Builder builder) {
+        mLevels = builder.levels;
+        mLevel = builder.initialLevel;
+        mProcessingBudget = builder.processingBudget;
+        mFrameBudget = builder.frameBudget;
+    }
+
+    public void setListener(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Gets the settings currently in use.
+     * @return the current level.
+     */
+    public synchronized Level getLevel() {
+        return mLevels[mLevel];
+    }
+
+    /**
+     * Gets all of the levels the governor can choose between, lowest quality first.
+     * @return a copy of the levels.
+     */
+    public Level[] getLevels() {
+        return mLevels.clone();
+    }
+
+    /**
+     * Records the time a processing stage spent on one unit of work. Safe to call from any thread.
+     * @param nanos the processing time in nanoseconds.
+     */
+    @Override
+    public synchronized void onProcessed(long nanos) {
+        mProcessingNanos += nanos;
+    }
+
+    /**
+     * Records the time spent drawing one frame.
+     * @param nanos the frame time in nanoseconds.
+     */
+    public synchronized void recordFrameTime(long nanos) {
+        mFrameNanos += nanos;
+    }
+
+    /**
+     * Checks the recorded times against the budget, changing level if needed. Call this regularly
+     * from the thread that should receive level changes.
+     * @param now the current time from System.nanoTime().
+     * @return true if the level changed.
+     */
+    public boolean evaluate(long now) {
+        Level changed = null;
+        synchronized (this) {
+            if (mLastEvaluation == 0) {
+                mLastEvaluation = now;
+                return false;
+            }
+            long elapsed = now - mLastEvaluation;
+            if (elapsed < EVALUATION_PERIOD) {
+                return false;
+            }
+
+            float processingLoad = mProcessingNanos / (float) elapsed;
+            float frameLoad = mFrameNanos / (float) elapsed;
+            mProcessingNanos = 0;
+            mFrameNanos = 0;
+            mLastEvaluation = now;
+
+            if (processingLoad > mProcessingBudget || frameLoad > mFrameBudget) {
+                mOverPeriods++;
+                mUnderPeriods = 0;
+            } else if (processingLoad < mProcessingBudget * STEP_UP_FRACTION
+                    && frameLoad < mFrameBudget * STEP_UP_FRACTION) {
+                mUnderPeriods++;
+                mOverPeriods = 0;
+            } else {
+                mOverPeriods = 0;
+                mUnderPeriods = 0;
+            }
+
+            if (mOverPeriods >= STEP_DOWN_PERIODS && mLevel > 0) {
+                mLevel--;
+                changed = mLevels[mLevel];
+            } else if (mUnderPeriods >= STEP_UP_PERIODS && mLevel < mLevels.length - 1) {
+                mLevel++;
+                changed = mLevels[mLevel];
+            }
+            if (changed != null) {
+                mOverPeriods = 0;
+                mUnderPeriods = 0;
+            }
+        }
+
+        if (changed != null && mListener != null) {
+            mListener.onLevelChanged(changed);
+        }
+        return changed != null;
+    }
+}
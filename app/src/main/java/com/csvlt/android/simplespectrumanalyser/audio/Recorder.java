@@ -4,8 +4,34 @@ package com.csvlt.android.simplespectrumanalyser.audio;
  * Simple interface to wrap AudioRecord.
  */
 public interface Recorder {
+
+    /**
+     * Receives each block of captured samples. Called on the read thread; the buffer is reused
+     * between calls so it must not be held on to.
+     */
+    interface Listener {
+        void onSamples(short[] samples, int count, int sampleRate);
+    }
+
     void start();
     void stop();
     void read();
     int getMeanAmplitude();
+    int getSampleRate();
+
+    /**
+     * Sets how many samples each read should capture, e.g. to match the time between reads.
+     * @param samples the number of samples per read.
+     */
+    void setReadSize(int samples);
+
+    /**
+     * Sets the largest read size that will be requested, so the capture buffer can hold a whole
+     * read. Takes effect the next time recording starts.
+     * @param samples the largest number of samples per read.
+     */
+    void setMaxReadSize(int samples);
+
+    void addListener(Listener listener);
+    void removeListener(Listener listener);
 }
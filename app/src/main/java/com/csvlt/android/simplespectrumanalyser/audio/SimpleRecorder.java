@@ -5,6 +5,8 @@ import android.media.AudioRecord;
 import android.media.MediaRecorder;
 import android.util.Log;
 
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
@@ -15,11 +17,19 @@ public class SimpleRecorder implements Recorder {
 
     private static final String TAG = "SimpleRecorder";
     private static final int SAMPLE_RATE = 44100;
+    private static final int BYTES_PER_SAMPLE = 2;
+    // Room for one read to be captured while the previous one is being read out
+    private static final int BUFFERED_READS = 2;
     public static final int CORE_POOL_SIZE = 4;
     private int mMinBufferSize;
+    private int mMaxReadSize;
+    private int mReadSize;
+    private volatile int mRequestedReadSize;
     private Executor mReadExecutor;
     private AudioRecord mAudioRecord = null;
     private int mMeanAmplitude;
+    private short[] mBuffer;
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
 
     public SimpleRecorder() {
         this(new ScheduledThreadPoolExecutor(CORE_POOL_SIZE));
@@ -36,18 +46,23 @@ public class SimpleRecorder implements Recorder {
     public SimpleRecorder(Executor executor, int minBufferSize) {
         mReadExecutor = executor;
         mMinBufferSize = minBufferSize;
+        // The minimum buffer size is in bytes, reads are in samples
+        mReadSize = minBufferSize / BYTES_PER_SAMPLE;
+        mRequestedReadSize = mReadSize;
+        mBuffer = new short[mReadSize];
     }
 
     @Override
     public void start() {
         if (mAudioRecord == null) {
+            int bufferSize = Math.max(mMinBufferSize, mMaxReadSize * BYTES_PER_SAMPLE * BUFFERED_READS);
             try {
                 mAudioRecord = new AudioRecord(
                         MediaRecorder.AudioSource.MIC,
                         SAMPLE_RATE,
                         AudioFormat.CHANNEL_IN_MONO,
                         AudioFormat.ENCODING_PCM_16BIT,
-                        mMinBufferSize);
+                        bufferSize);
             } catch (IllegalArgumentException e) {
                 Log.e(TAG, "Could not start: " + e.getMessage());
             }
@@ -86,17 +101,68 @@ public class SimpleRecorder implements Recorder {
         return mMeanAmplitude;
     }
 
-    private void readMeanAmplitude() {
+    @Override
+    public int getSampleRate() {
+        return SAMPLE_RATE;
+    }
+
+    /**
+     * Requests a new read size. This never waits on a read in progress; the size is picked up at
+     * the start of the next read.
+     */
+    @Override
+    public void setReadSize(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("samples must be at least 1");
+        }
+        mRequestedReadSize = samples;
+    }
+
+    @Override
+    public void setMaxReadSize(int samples) {
+        if (samples < 1) {
+            throw new IllegalArgumentException("samples must be at least 1");
+        }
+        mMaxReadSize = samples;
+    }
+
+    @Override
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    // Reads are queued on a pool, so serialise them to keep the shared buffer consistent
+    private synchronized void readMeanAmplitude() {
+        int readSize = mRequestedReadSize;
+        if (readSize > mBuffer.length) {
+            mBuffer = new short[readSize];
+        }
+        mReadSize = readSize;
+
         int sum = 0;
-        short[] buffer = new short[mMinBufferSize];
-        if (mAudioRecord.getState() == AudioRecord.STATE_INITIALIZED) {
-            mAudioRecord.read(buffer, 0, mMinBufferSize);
+        int read = 0;
+        AudioRecord audioRecord = mAudioRecord;
+        if (audioRecord != null && audioRecord.getState() == AudioRecord.STATE_INITIALIZED) {
+            read = audioRecord.read(mBuffer, 0, mReadSize);
+        }
+        if (read <= 0) {
+            mMeanAmplitude = 0;
+            return;
         }
 
-        for (short sample : buffer) {
-            sum += sample;
+        for (int i = 0; i < read; i++) {
+            sum += mBuffer[i];
         }
 
-        mMeanAmplitude = Math.abs(sum / mMinBufferSize);
+        mMeanAmplitude = Math.abs(sum / read);
+
+        for (Listener listener : mListeners) {
+            listener.onSamples(mBuffer, read, SAMPLE_RATE);
+        }
     }
 }
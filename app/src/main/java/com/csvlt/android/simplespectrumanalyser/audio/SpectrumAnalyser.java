@@ -0,0 +1,236 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Turns the captured sample stream into a power spectrum every hop.
+ *
+ * Samples are kept in a circular frame so each hop only copies in the new samples; the frame is
+ * then Hann windowed and transformed. Power is divided by the squared window sum so a given signal
+ * gives the same levels whatever the fft size. Buffers are only allocated when the fft size
+ * changes.
+ */
+public class SpectrumAnalyser implements Recorder.Listener {
+
+    /**
+     * Receives the power spectrum, fftSize / 2 + 1 bins, once per hop. Called on the read thread;
+     * the array is reused between calls so it must not be held on to.
+     */
+    public interface Listener {
+        void onSpectrum(float[] power, int sampleRate);
+    }
+
+    private static final float SAMPLE_SCALE = 1f / 32768f;
+
+    private static class Configuration {
+        final int fftSize;
+        final int hopSize;
+
+        Configuration(int fftSize, int hopSize) {
+            this.fftSize = fftSize;
+            this.hopSize = hopSize;
+        }
+    }
+
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+    private final List<Listener> mDenoisedListeners = new CopyOnWriteArrayList<Listener>();
+    private volatile ProcessingListener mProcessingListener;
+    private volatile NoiseFloorEstimator mNoiseFloor;
+    private volatile Configuration mConfiguration;
+    private Configuration mAppliedConfiguration;
+
+    private FFT mFft;
+    private float[] mWindow;
+    private float[] mFrame;
+    private float[] mRe;
+    private float[] mIm;
+    private float[] mPower;
+    private float[] mDenoisedPower;
+    private float mPowerScale;
+    private int mHopSize;
+    private int mWritePos;
+    private int mSinceHop;
+
+    /**
+     * @param fftSize the frame and transform size, a power of two.
+     * @param hopSize the number of new samples between spectra.
+     * @throws IllegalArgumentException if fftSize is not a power of two or hopSize is not between
+     * 1 and fftSize.
+     */
+    public SpectrumAnalyser(int fftSize, int hopSize) {
+        configure(fftSize, hopSize);
+        applyConfiguration(mConfiguration);
+    }
+
+    /**
+     * Changes the frame and hop size. Safe to call from any thread without waiting on the read
+     * thread; the change is applied before the next block of samples, discarding the samples
+     * already in the frame.
+     * @param fftSize the frame and transform size, a power of two.
+     * @param hopSize the number of new samples between spectra.
+     * @throws IllegalArgumentException if fftSize is not a power of two or hopSize is not between
+     * 1 and fftSize.
+     */
+    public void configure(int fftSize, int hopSize) {
+        if (fftSize < 2 || (fftSize & (fftSize - 1)) != 0) {
+            throw new IllegalArgumentException("fftSize must be a power of two");
+        }
+        if (hopSize < 1 || hopSize > fftSize) {
+            throw new IllegalArgumentException("hopSize must be between 1 and fftSize");
+        }
+        Configuration current = mConfiguration;
+        if (current == null || current.fftSize != fftSize || current.hopSize != hopSize) {
+            mConfiguration = new Configuration(fftSize, hopSize);
+        }
+    }
+
+    private void applyConfiguration(Configuration configuration) {
+        mAppliedConfiguration = configuration;
+        int fftSize = configuration.fftSize;
+        mHopSize = configuration.hopSize;
+        mWritePos = 0;
+        mSinceHop = 0;
+        if (mFft != null && mFft.getSize() == fftSize) {
+            Arrays.fill(mFrame, 0);
+            return;
+        }
+        mFft = new FFT(fftSize);
+        mWindow = new float[fftSize];
+        double windowSum = 0;
+        for (int i = 0; i < fftSize; i++) {
+            mWindow[i] = (float) (0.5 - 0.5 * Math.cos(2 * Math.PI * i / fftSize));
+            windowSum += mWindow[i];
+        }
+        mPowerScale = (float) (1 / (windowSum * windowSum));
+        mFrame = new float[fftSize];
+        mRe = new float[fftSize];
+        mIm = new float[fftSize];
+        mPower = new float[fftSize / 2 + 1];
+        mDenoisedPower = new float[fftSize / 2 + 1];
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Adds a listener for the spectrum after the noise floor estimator has subtracted or gated it,
+     * e.g. for display or peak detection. Listeners added with addListener always get the raw
+     * spectrum, so feature extraction is unaffected by the noise floor mode.
+     * @param listener the listener.
+     */
+    public void addDenoisedListener(Listener listener) {
+        mDenoisedListeners.add(listener);
+    }
+
+    public void removeDenoisedListener(Listener listener) {
+        mDenoisedListeners.remove(listener);
+    }
+
+    /**
+     * Sets a listener to be told how long each hop took, including the spectrum listeners.
+     * @param listener the listener, or null to stop timing.
+     */
+    public void setProcessingListener(ProcessingListener listener) {
+        mProcessingListener = listener;
+    }
+
+    /**
+     * Sets a noise floor estimator to update from each spectrum while there are denoised
+     * listeners. Depending on its mode the copy published to them has the floor subtracted or gated
+     * out.
+     * @param estimator the estimator, or null to publish the raw spectrum to denoised listeners.
+     */
+    public void setNoiseFloorEstimator(NoiseFloorEstimator estimator) {
+        mNoiseFloor = estimator;
+    }
+
+    /**
+     * Gets the most recently configured frame and transform size.
+     * @return the fft size.
+     */
+    public int getFftSize() {
+        return mConfiguration.fftSize;
+    }
+
+    /**
+     * Gets the most recently configured number of new samples between spectra.
+     * @return the hop size.
+     */
+    public int getHopSize() {
+        return mConfiguration.hopSize;
+    }
+
+    @Override
+    public synchronized void onSamples(short[] samples, int count, int sampleRate) {
+        Configuration configuration = mConfiguration;
+        if (configuration != mAppliedConfiguration) {
+            applyConfiguration(configuration);
+        }
+
+        int size = mFrame.length;
+        for (int i = 0; i < count; i++) {
+            mFrame[mWritePos] = samples[i] * SAMPLE_SCALE;
+            mWritePos++;
+            if (mWritePos == size) {
+                mWritePos = 0;
+            }
+            mSinceHop++;
+            if (mSinceHop == mHopSize) {
+                mSinceHop = 0;
+                analyse(sampleRate);
+            }
+        }
+    }
+
+    private void analyse(int sampleRate) {
+        long start = System.nanoTime();
+        int size = mFrame.length;
+
+        // Unroll the circular frame, oldest sample first
+        int tail = size - mWritePos;
+        for (int i = 0; i < tail; i++) {
+            mRe[i] = mFrame[mWritePos + i] * mWindow[i];
+            mIm[i] = 0;
+        }
+        for (int i = tail; i < size; i++) {
+            mRe[i] = mFrame[i - tail] * mWindow[i];
+            mIm[i] = 0;
+        }
+
+        mFft.forward(mRe, mIm);
+        for (int k = 0; k < mPower.length; k++) {
+            mPower[k] = (mRe[k] * mRe[k] + mIm[k] * mIm[k]) * mPowerScale;
+        }
+
+        for (Listener listener : mListeners) {
+            listener.onSpectrum(mPower, sampleRate);
+        }
+
+        // The floor is removed from a copy so the raw spectrum is left intact, and only tracked
+        // while something wants the denoised spectrum
+        if (!mDenoisedListeners.isEmpty()) {
+            float[] denoised = mPower;
+            NoiseFloorEstimator noiseFloor = mNoiseFloor;
+            if (noiseFloor != null) {
+                System.arraycopy(mPower, 0, mDenoisedPower, 0, mPower.length);
+                noiseFloor.process(mDenoisedPower);
+                denoised = mDenoisedPower;
+            }
+            for (Listener listener : mDenoisedListeners) {
+                listener.onSpectrum(denoised, sampleRate);
+            }
+        }
+
+        ProcessingListener processingListener = mProcessingListener;
+        if (processingListener != null) {
+            processingListener.onProcessed(System.nanoTime() - start);
+        }
+    }
+}
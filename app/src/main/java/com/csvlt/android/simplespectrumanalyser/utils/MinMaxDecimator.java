@@ -0,0 +1,96 @@
+package com.csvlt.android.simplespectrumanalyser.utils;
+
+/**
+ * Reduces a long history of values onto a fixed number of display columns.
+ *
+ * Each column covers a run of consecutive values and keeps only their minimum and maximum, so
+ * peaks are never lost however many values are squeezed into a column. Columns are filled
+ * incrementally as values arrive and wrap around once the history is full, which means drawing
+ * costs one operation per column no matter how long the history is.
+ */
+public class MinMaxDecimator {
+
+    private final int mColumnCount;
+    private final int mValuesPerColumn;
+    private final int[] mMin;
+    private final int[] mMax;
+
+    private int mColumn;
+    private int mFill;
+
+    /**
+     * @param historyLength the number of values that should fit across all of the columns.
+     * @param maxColumns the maximum number of columns available, e.g. the width in pixels.
+     * @throws IllegalArgumentException if either argument is less than 1.
+     */
+    public MinMaxDecimator(int historyLength, int maxColumns) {
+        if (historyLength < 1 || maxColumns < 1) {
+            throw new IllegalArgumentException("historyLength and maxColumns must be at least 1");
+        }
+        mValuesPerColumn = (historyLength + maxColumns - 1) / maxColumns;
+        mColumnCount = (historyLength + mValuesPerColumn - 1) / mValuesPerColumn;
+        mMin = new int[mColumnCount];
+        mMax = new int[mColumnCount];
+    }
+
+    /**
+     * Adds the next value to the current column, moving on to the next column once it is full.
+     * @param value the value to add.
+     */
+    public void add(int value) {
+        if (mFill == mValuesPerColumn) {
+            mColumn = (mColumn + 1) % mColumnCount;
+            mFill = 0;
+        }
+        if (mFill == 0 || value < mMin[mColumn]) {
+            mMin[mColumn] = value;
+        }
+        if (mFill == 0 || value > mMax[mColumn]) {
+            mMax[mColumn] = value;
+        }
+        mFill++;
+    }
+
+    /**
+     * Gets the number of columns actually used, which may be fewer than requested when the
+     * history is shorter than the available width.
+     * @return the column count.
+     */
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    /**
+     * Gets the number of values reduced into each column.
+     * @return the values per column.
+     */
+    public int getValuesPerColumn() {
+        return mValuesPerColumn;
+    }
+
+    /**
+     * Gets the index of the column currently being filled.
+     * @return the current column.
+     */
+    public int getCurrentColumn() {
+        return mColumn;
+    }
+
+    /**
+     * Gets the smallest value in a column.
+     * @param column the column index.
+     * @return the column minimum.
+     */
+    public int getMin(int column) {
+        return mMin[column];
+    }
+
+    /**
+     * Gets the largest value in a column.
+     * @param column the column index.
+     * @return the column maximum.
+     */
+    public int getMax(int column) {
+        return mMax[column];
+    }
+}
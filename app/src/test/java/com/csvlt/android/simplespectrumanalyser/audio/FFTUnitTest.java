@@ -0,0 +1,48 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+import static org.junit.Assert.*;
+
+public class FFTUnitTest {
+
+    private static final float TOLERANCE = 1e-3f;
+
+    @Test
+    public void fftPutsSinusoidEnergyInItsBin() {
+        int size = 64;
+        float[] re = new float[size];
+        float[] im = new float[size];
+        for (int i = 0; i < size; i++) {
+            re[i] = (float) Math.cos(2 * Math.PI * 5 * i / size);
+        }
+        new FFT(size).forward(re, im);
+        assertThat((double) re[5], is(closeTo(size / 2, TOLERANCE)));
+        assertThat((double) re[4], is(closeTo(0, TOLERANCE)));
+        assertThat((double) im[5], is(closeTo(0, TOLERANCE)));
+    }
+
+    @Test
+    public void inverseUndoesForward() {
+        int size = 32;
+        float[] re = new float[size];
+        float[] im = new float[size];
+        for (int i = 0; i < size; i++) {
+            re[i] = i % 7 - 3;
+        }
+        FFT fft = new FFT(size);
+        fft.forward(re, im);
+        fft.inverse(re, im);
+        for (int i = 0; i < size; i++) {
+            assertThat((double) re[i], is(closeTo(i % 7 - 3, TOLERANCE)));
+            assertThat((double) im[i], is(closeTo(0, TOLERANCE)));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fftThrowsWhenSizeIsNotPowerOfTwo() {
+        new FFT(100);
+    }
+}
@@ -0,0 +1,144 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+import static org.junit.Assert.*;
+
+public class MfccExtractorUnitTest {
+
+    private static final int FFT_SIZE = 512;
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void filterbankBandsPeakAtIncreasingBins() {
+        MelFilterbank filterbank = new MelFilterbank(FFT_SIZE, SAMPLE_RATE, 20, 20, 8000);
+        float[] energies = new float[20];
+        int previousPeak = -1;
+        for (int band = 0; band < 20; band++) {
+            int peak = -1;
+            float best = 0;
+            for (int bin = 0; bin <= FFT_SIZE / 2; bin++) {
+                float[] power = new float[FFT_SIZE / 2 + 1];
+                power[bin] = 1;
+                filterbank.apply(power, energies);
+                if (energies[band] > best) {
+                    best = energies[band];
+                    peak = bin;
+                }
+            }
+            assertThat(peak, is(greaterThanOrEqualTo(previousPeak)));
+            previousPeak = peak;
+        }
+    }
+
+    @Test
+    public void scalingSpectrumOnlyChangesFirstCoefficient() {
+        MfccExtractor extractor = new MfccExtractor(26, 13);
+        float[] power = new float[FFT_SIZE / 2 + 1];
+        for (int i = 0; i < power.length; i++) {
+            power[i] = 1 + i % 5;
+        }
+        float[] quiet = extractor.extract(power, SAMPLE_RATE).clone();
+        for (int i = 0; i < power.length; i++) {
+            power[i] *= 100;
+        }
+        float[] loud = extractor.extract(power, SAMPLE_RATE);
+
+        assertThat((double) loud[0], is(greaterThan((double) quiet[0])));
+        for (int k = 1; k < loud.length; k++) {
+            assertThat((double) loud[k], is(closeTo(quiet[k], 1e-3)));
+        }
+    }
+
+    @Test
+    public void extractorPublishesToListeners() {
+        MfccExtractor extractor = new MfccExtractor(26, 13);
+        final float[][] received = new float[1][];
+        final int[] formatFftSize = new int[1];
+        extractor.addListener(new MfccExtractor.Listener() {
+            @Override
+            public void onFeatures(float[] coefficients) {
+                received[0] = coefficients;
+            }
+
+            @Override
+            public void onFormatChanged(int fftSize, int sampleRate) {
+                formatFftSize[0] = fftSize;
+            }
+        });
+        extractor.onSpectrum(new float[FFT_SIZE / 2 + 1], SAMPLE_RATE);
+        assertThat(received[0], is(notNullValue()));
+        assertThat(received[0].length, is(13));
+        assertThat(formatFftSize[0], is(FFT_SIZE));
+    }
+
+    @Test
+    public void extractorTellsListenersWhenFftSizeChanges() {
+        MfccExtractor extractor = new MfccExtractor(26, 13);
+        final int[] formatChanges = new int[1];
+        extractor.addListener(new MfccExtractor.Listener() {
+            @Override
+            public void onFeatures(float[] coefficients) {
+            }
+
+            @Override
+            public void onFormatChanged(int fftSize, int sampleRate) {
+                formatChanges[0]++;
+            }
+        });
+        extractor.onSpectrum(new float[FFT_SIZE / 2 + 1], SAMPLE_RATE);
+        extractor.onSpectrum(new float[FFT_SIZE / 2 + 1], SAMPLE_RATE);
+        extractor.onSpectrum(new float[FFT_SIZE + 1], SAMPLE_RATE);
+        assertThat(formatChanges[0], is(2));
+    }
+
+    @Test
+    public void listenerAddedLaterIsToldFormatBeforeFeatures() {
+        MfccExtractor extractor = new MfccExtractor(26, 13);
+        extractor.addListener(new MfccExtractor.Listener() {
+            @Override
+            public void onFeatures(float[] coefficients) {
+            }
+
+            @Override
+            public void onFormatChanged(int fftSize, int sampleRate) {
+            }
+        });
+        extractor.onSpectrum(new float[FFT_SIZE / 2 + 1], SAMPLE_RATE);
+
+        final int[] formatFftSize = new int[1];
+        final boolean[] featuresBeforeFormat = new boolean[1];
+        extractor.addListener(new MfccExtractor.Listener() {
+            @Override
+            public void onFeatures(float[] coefficients) {
+                if (formatFftSize[0] == 0) {
+                    featuresBeforeFormat[0] = true;
+                }
+            }
+
+            @Override
+            public void onFormatChanged(int fftSize, int sampleRate) {
+                formatFftSize[0] = fftSize;
+            }
+        });
+        extractor.onSpectrum(new float[FFT_SIZE / 2 + 1], SAMPLE_RATE);
+        assertThat(formatFftSize[0], is(FFT_SIZE));
+        assertFalse(featuresBeforeFormat[0]);
+    }
+
+    @Test
+    public void silenceGivesFiniteCoefficients() {
+        MfccExtractor extractor = new MfccExtractor(26, 13);
+        float[] coefficients = extractor.extract(new float[FFT_SIZE / 2 + 1], SAMPLE_RATE);
+        for (float c : coefficients) {
+            assertFalse(Float.isInfinite(c) || Float.isNaN(c));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void extractorThrowsWhenMoreCoefficientsThanBands() {
+        new MfccExtractor(10, 13);
+    }
+}
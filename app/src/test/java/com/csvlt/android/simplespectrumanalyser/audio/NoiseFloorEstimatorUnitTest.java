@@ -0,0 +1,97 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+import static org.junit.Assert.*;
+
+public class NoiseFloorEstimatorUnitTest {
+
+    @Test
+    public void estimatorTracksStationaryFloorPerBin() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator(4, 4, 0.5f, 1f);
+        for (int i = 0; i < 32; i++) {
+            estimator.process(new float[] {1, 10});
+        }
+        assertThat((double) estimator.getNoise(0), is(closeTo(1, 1e-3)));
+        assertThat((double) estimator.getNoise(1), is(closeTo(10, 1e-3)));
+    }
+
+    @Test
+    public void estimatorIgnoresShortBursts() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator(4, 4, 0.5f, 1f);
+        for (int i = 0; i < 16; i++) {
+            estimator.process(new float[] {1});
+        }
+        for (int i = 0; i < 4; i++) {
+            estimator.process(new float[] {100});
+        }
+        assertThat((double) estimator.getNoise(0), is(closeTo(1, 1e-3)));
+    }
+
+    @Test
+    public void estimatorForgetsOldFloorAfterWindow() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator(4, 4, 0.5f, 1f);
+        for (int i = 0; i < 16; i++) {
+            estimator.process(new float[] {1});
+        }
+        for (int i = 0; i < 40; i++) {
+            estimator.process(new float[] {5});
+        }
+        assertThat((double) estimator.getNoise(0), is(closeTo(5, 1e-3)));
+    }
+
+    @Test
+    public void shorterSubWindowsForgetOldFloorSooner() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator(16, 4, 0.5f, 1f);
+        for (int i = 0; i < 64; i++) {
+            estimator.process(new float[] {1});
+        }
+        estimator.setSubWindowLength(1);
+        for (int i = 0; i < 12; i++) {
+            estimator.process(new float[] {5});
+        }
+        assertThat((double) estimator.getNoise(0), is(closeTo(5, 0.05)));
+    }
+
+    @Test
+    public void subtractModeRemovesFloor() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator(4, 4, 0.5f, 1f);
+        estimator.setMode(NoiseFloorEstimator.MODE_SUBTRACT);
+        for (int i = 0; i < 16; i++) {
+            estimator.process(new float[] {2, 2});
+        }
+        float[] values = {2, 7};
+        estimator.process(values);
+        assertThat((double) values[0], is(closeTo(0, 1e-3)));
+        assertThat((double) values[1], is(closeTo(5, 1e-3)));
+    }
+
+    @Test
+    public void gateModeZeroesBinsNearFloor() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator(4, 4, 0.5f, 1f);
+        estimator.setMode(NoiseFloorEstimator.MODE_GATE);
+        estimator.setGateRatio(2f);
+        for (int i = 0; i < 16; i++) {
+            estimator.process(new float[] {2, 2});
+        }
+        float[] values = {3, 9};
+        estimator.process(values);
+        assertThat(values[0], is(0f));
+        assertThat(values[1], is(9f));
+    }
+
+    @Test
+    public void estimatorFollowsChangesInBinCount() {
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator();
+        estimator.process(new float[4]);
+        estimator.process(new float[8]);
+        assertThat(estimator.getBinCount(), is(8));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void estimatorThrowsOnUnknownMode() {
+        new NoiseFloorEstimator().setMode(5);
+    }
+}
@@ -0,0 +1,80 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+import static org.junit.Assert.*;
+
+public class PitchDetectorUnitTest {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final int WINDOW_SIZE = 2048;
+
+    @Test
+    public void detectorFindsPitchOfSineWave() {
+        PitchDetector detector = new PitchDetector(WINDOW_SIZE, WINDOW_SIZE);
+        detector.onSamples(sine(440), WINDOW_SIZE, SAMPLE_RATE);
+        PitchDetector.Estimate estimate = detector.getEstimate();
+        assertThat((double) estimate.frequency, is(closeTo(440, 1)));
+        assertThat((double) estimate.confidence, is(greaterThan(0.9)));
+    }
+
+    @Test
+    public void detectorFindsFundamentalOfHarmonicTone() {
+        PitchDetector detector = new PitchDetector(WINDOW_SIZE, WINDOW_SIZE);
+        short[] samples = new short[WINDOW_SIZE];
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            double t = i / (double) SAMPLE_RATE;
+            samples[i] = (short) (4000 * Math.sin(2 * Math.PI * 220 * t)
+                    + 6000 * Math.sin(2 * Math.PI * 440 * t)
+                    + 3000 * Math.sin(2 * Math.PI * 660 * t));
+        }
+        detector.onSamples(samples, WINDOW_SIZE, SAMPLE_RATE);
+        assertThat((double) detector.getEstimate().frequency, is(closeTo(220, 1)));
+    }
+
+    @Test
+    public void detectorReportsNoConfidenceForSilence() {
+        PitchDetector detector = new PitchDetector(WINDOW_SIZE, WINDOW_SIZE);
+        detector.onSamples(new short[WINDOW_SIZE], WINDOW_SIZE, SAMPLE_RATE);
+        assertThat(detector.getEstimate(), is(sameInstance(PitchDetector.NONE)));
+    }
+
+    @Test
+    public void detectorPublishesOncePerHop() {
+        PitchDetector detector = new PitchDetector(WINDOW_SIZE, WINDOW_SIZE / 2);
+        final int[] calls = new int[1];
+        detector.addListener(new PitchDetector.Listener() {
+            @Override
+            public void onPitch(float frequency, float confidence) {
+                calls[0]++;
+            }
+        });
+        detector.onSamples(sine(330), WINDOW_SIZE, SAMPLE_RATE);
+        assertThat(calls[0], is(2));
+    }
+
+    @Test
+    public void detectorAppliesNewHopSizeOnNextBlock() {
+        PitchDetector detector = new PitchDetector(WINDOW_SIZE, WINDOW_SIZE);
+        final int[] calls = new int[1];
+        detector.addListener(new PitchDetector.Listener() {
+            @Override
+            public void onPitch(float frequency, float confidence) {
+                calls[0]++;
+            }
+        });
+        detector.setHopSize(WINDOW_SIZE / 4);
+        detector.onSamples(sine(330), WINDOW_SIZE, SAMPLE_RATE);
+        assertThat(calls[0], is(4));
+    }
+
+    private static short[] sine(double frequency) {
+        short[] samples = new short[WINDOW_SIZE];
+        for (int i = 0; i < WINDOW_SIZE; i++) {
+            samples[i] = (short) (10000 * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        return samples;
+    }
+}
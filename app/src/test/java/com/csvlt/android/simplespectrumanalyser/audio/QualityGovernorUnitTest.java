@@ -0,0 +1,82 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+import static org.junit.Assert.*;
+
+public class QualityGovernorUnitTest {
+
+    private static final long PERIOD = QualityGovernor.EVALUATION_PERIOD;
+
+    @Test
+    public void governorStartsAtInitialLevel() {
+        QualityGovernor governor = new QualityGovernor.Builder().initialLevel(1).build();
+        assertThat(governor.getLevel(), is(QualityGovernor.DEFAULT_LEVELS[1]));
+    }
+
+    @Test
+    public void governorStepsDownWhenOverBudget() {
+        QualityGovernor governor = new QualityGovernor.Builder().processingBudget(0.25f).build();
+        long now = 1;
+        governor.evaluate(now);
+        for (int i = 0; i < QualityGovernor.STEP_DOWN_PERIODS; i++) {
+            governor.onProcessed(PERIOD / 2);
+            now += PERIOD;
+            governor.evaluate(now);
+        }
+        assertThat(governor.getLevel(), is(QualityGovernor.DEFAULT_LEVELS[QualityGovernor.DEFAULT_INITIAL_LEVEL - 1]));
+    }
+
+    @Test
+    public void governorStepsUpWhenWellUnderBudget() {
+        QualityGovernor governor = new QualityGovernor.Builder().build();
+        long now = 1;
+        governor.evaluate(now);
+        for (int i = 0; i < QualityGovernor.STEP_UP_PERIODS; i++) {
+            now += PERIOD;
+            governor.evaluate(now);
+        }
+        assertThat(governor.getLevel(), is(QualityGovernor.DEFAULT_LEVELS[QualityGovernor.DEFAULT_INITIAL_LEVEL + 1]));
+    }
+
+    @Test
+    public void governorHoldsLevelBetweenThresholds() {
+        QualityGovernor governor = new QualityGovernor.Builder().processingBudget(0.25f).build();
+        long now = 1;
+        governor.evaluate(now);
+        for (int i = 0; i < QualityGovernor.STEP_UP_PERIODS * 2; i++) {
+            // Under budget, but not far enough under to step up
+            governor.onProcessed((long) (PERIOD * 0.2f));
+            now += PERIOD;
+            assertFalse(governor.evaluate(now));
+        }
+        assertThat(governor.getLevel(), is(QualityGovernor.DEFAULT_LEVELS[QualityGovernor.DEFAULT_INITIAL_LEVEL]));
+    }
+
+    @Test
+    public void governorStepsDownWhenFramesAreSlow() {
+        QualityGovernor governor = new QualityGovernor.Builder().frameBudget(0.5f).build();
+        final QualityGovernor.Level[] changed = new QualityGovernor.Level[1];
+        governor.setListener(new QualityGovernor.Listener() {
+            @Override
+            public void onLevelChanged(QualityGovernor.Level level) {
+                changed[0] = level;
+            }
+        });
+        long now = 1;
+        governor.evaluate(now);
+        for (int i = 0; i < QualityGovernor.STEP_DOWN_PERIODS; i++) {
+            governor.recordFrameTime(PERIOD);
+            now += PERIOD;
+            governor.evaluate(now);
+        }
+        assertThat(changed[0], is(QualityGovernor.DEFAULT_LEVELS[QualityGovernor.DEFAULT_INITIAL_LEVEL - 1]));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void builderThrowsWhenInitialLevelOutOfRange() {
+        new QualityGovernor.Builder().initialLevel(QualityGovernor.DEFAULT_LEVELS.length).build();
+    }
+}
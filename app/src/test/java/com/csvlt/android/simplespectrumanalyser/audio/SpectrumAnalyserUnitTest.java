@@ -0,0 +1,149 @@
+package com.csvlt.android.simplespectrumanalyser.audio;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.Matchers.*;
+
+import static org.junit.Assert.*;
+
+public class SpectrumAnalyserUnitTest {
+
+    private static final int SAMPLE_RATE = 44100;
+
+    @Test
+    public void toneLevelDoesNotDependOnFftSize() {
+        assertThat((double) peakPower(2048), is(closeTo(peakPower(512), peakPower(512) * 0.05)));
+    }
+
+    @Test
+    public void mfccDoesNotDependOnFftSize() {
+        float[] small = meanFeatures(512);
+        float[] large = meanFeatures(2048);
+        assertThat((double) large[0], is(closeTo(small[0], Math.abs(small[0]) * 0.05)));
+    }
+
+    @Test
+    public void configurationIsAppliedOnNextBlock() {
+        SpectrumAnalyser analyser = new SpectrumAnalyser(512, 512);
+        final int[] binCount = new int[1];
+        analyser.addListener(new SpectrumAnalyser.Listener() {
+            @Override
+            public void onSpectrum(float[] power, int sampleRate) {
+                binCount[0] = power.length;
+            }
+        });
+        analyser.configure(1024, 256);
+        assertThat(analyser.getFftSize(), is(1024));
+        analyser.onSamples(new short[256], 256, SAMPLE_RATE);
+        assertThat(binCount[0], is(513));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void configureThrowsWhenFftSizeIsNotPowerOfTwo() {
+        new SpectrumAnalyser(512, 512).configure(1000, 500);
+    }
+
+    @Test
+    public void noiseFloorOnlyAffectsDenoisedListeners() {
+        SpectrumAnalyser analyser = new SpectrumAnalyser(512, 512);
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator();
+        estimator.setMode(NoiseFloorEstimator.MODE_GATE);
+        analyser.setNoiseFloorEstimator(estimator);
+        final float[] rawSum = new float[1];
+        final float[] denoisedSum = new float[1];
+        analyser.addListener(new SpectrumAnalyser.Listener() {
+            @Override
+            public void onSpectrum(float[] power, int sampleRate) {
+                rawSum[0] = sum(power);
+            }
+        });
+        analyser.addDenoisedListener(new SpectrumAnalyser.Listener() {
+            @Override
+            public void onSpectrum(float[] power, int sampleRate) {
+                denoisedSum[0] = sum(power);
+            }
+        });
+
+        // Stationary noise sits at the floor, so the gate removes it from the denoised copy only
+        Random random = new Random(1);
+        short[] samples = new short[512 * 40];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 3000);
+        }
+        analyser.onSamples(samples, samples.length, SAMPLE_RATE);
+        assertThat(rawSum[0], is(greaterThan(0f)));
+        assertThat(denoisedSum[0], is(lessThan(rawSum[0])));
+    }
+
+    @Test
+    public void noiseFloorIsNotTrackedWithoutDenoisedListeners() {
+        SpectrumAnalyser analyser = new SpectrumAnalyser(512, 512);
+        NoiseFloorEstimator estimator = new NoiseFloorEstimator();
+        analyser.setNoiseFloorEstimator(estimator);
+        analyser.onSamples(new short[512 * 4], 512 * 4, SAMPLE_RATE);
+        assertThat(estimator.getBinCount(), is(0));
+    }
+
+    private static float sum(float[] values) {
+        float sum = 0;
+        for (float value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    private static float peakPower(int fftSize) {
+        SpectrumAnalyser analyser = new SpectrumAnalyser(fftSize, fftSize);
+        final float[] peak = new float[1];
+        analyser.addListener(new SpectrumAnalyser.Listener() {
+            @Override
+            public void onSpectrum(float[] power, int sampleRate) {
+                for (float p : power) {
+                    peak[0] = Math.max(peak[0], p);
+                }
+            }
+        });
+        // A bin-centred tone so scalloping does not differ between sizes
+        double frequency = 16 * SAMPLE_RATE / 512.0;
+        short[] samples = new short[fftSize];
+        for (int i = 0; i < fftSize; i++) {
+            samples[i] = (short) (10000 * Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE));
+        }
+        analyser.onSamples(samples, fftSize, SAMPLE_RATE);
+        return peak[0];
+    }
+
+    private static float[] meanFeatures(int fftSize) {
+        SpectrumAnalyser analyser = new SpectrumAnalyser(fftSize, fftSize);
+        MfccExtractor extractor = new MfccExtractor(26, 13);
+        analyser.addListener(extractor);
+        final float[] sum = new float[13];
+        final int[] count = new int[1];
+        extractor.addListener(new MfccExtractor.Listener() {
+            @Override
+            public void onFeatures(float[] coefficients) {
+                for (int k = 0; k < coefficients.length; k++) {
+                    sum[k] += coefficients[k];
+                }
+                count[0]++;
+            }
+
+            @Override
+            public void onFormatChanged(int fftSize, int sampleRate) {
+            }
+        });
+        // White noise from a fixed seed, the same signal for both sizes
+        Random random = new Random(1);
+        short[] samples = new short[SAMPLE_RATE];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (random.nextGaussian() * 3000);
+        }
+        analyser.onSamples(samples, samples.length, SAMPLE_RATE);
+        for (int k = 0; k < sum.length; k++) {
+            sum[k] /= count[0];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,55 @@
+package com.csvlt.android.simplespectrumanalyser.utils;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+
+import static org.junit.Assert.*;
+
+public class MinMaxDecimatorUnitTest {
+
+    @Test
+    public void decimatorUsesOneValuePerColumnWhenHistoryFitsWidth() {
+        MinMaxDecimator decimator = new MinMaxDecimator(100, 500);
+        assertThat(decimator.getColumnCount(), is(100));
+        assertThat(decimator.getValuesPerColumn(), is(1));
+    }
+
+    @Test
+    public void decimatorNeverUsesMoreColumnsThanAvailable() {
+        MinMaxDecimator decimator = new MinMaxDecimator(2000, 300);
+        assertThat(decimator.getColumnCount(), is(lessThanOrEqualTo(300)));
+        assertThat(decimator.getColumnCount() * decimator.getValuesPerColumn(), is(greaterThanOrEqualTo(2000)));
+    }
+
+    @Test
+    public void decimatorKeepsMinAndMaxOfEachColumn() {
+        MinMaxDecimator decimator = new MinMaxDecimator(8, 2);
+        int[] values = {3, 9, 1, 4, 7, 2, 8, 5};
+        for (int value : values) {
+            decimator.add(value);
+        }
+        assertThat(decimator.getMin(0), is(1));
+        assertThat(decimator.getMax(0), is(9));
+        assertThat(decimator.getMin(1), is(2));
+        assertThat(decimator.getMax(1), is(8));
+    }
+
+    @Test
+    public void decimatorWrapsAroundOnceHistoryIsFull() {
+        MinMaxDecimator decimator = new MinMaxDecimator(4, 2);
+        for (int i = 0; i < 4; i++) {
+            decimator.add(10);
+        }
+        decimator.add(1);
+        assertThat(decimator.getCurrentColumn(), is(0));
+        assertThat(decimator.getMin(0), is(1));
+        assertThat(decimator.getMax(0), is(1));
+        assertThat(decimator.getMax(1), is(10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void decimatorThrowsWhenWidthIsZero() {
+        new MinMaxDecimator(100, 0);
+    }
+}